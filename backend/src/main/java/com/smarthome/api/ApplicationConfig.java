@@ -19,6 +19,7 @@ public class ApplicationConfig extends Application {
         
         // Add filters
         resources.add(CorsFilter.class);
+        resources.add(StartupTimingFilter.class);
         
         return resources;
     }
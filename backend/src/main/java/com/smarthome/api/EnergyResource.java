@@ -1,6 +1,9 @@
 package com.smarthome.api;
 
+import com.smarthome.model.EnergyAnomaly;
 import com.smarthome.model.EnergyEntry;
+import com.smarthome.model.GroupingLevel;
+import com.smarthome.model.UsageNode;
 import com.smarthome.service.EnergyService;
 
 import javax.inject.Inject;
@@ -9,6 +12,10 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 @Path("/energy")
@@ -49,6 +56,13 @@ public class EnergyResource {
         return Response.status(Response.Status.CREATED).build();
     }
     
+    @POST
+    @Path("/appliance/{id}/entries")
+    public Response addEnergyEntries(@PathParam("id") Long applianceId, List<EnergyEntry> entries) {
+        energyService.addEnergyEntries(applianceId, entries);
+        return Response.status(Response.Status.CREATED).build();
+    }
+    
     @GET
     @Path("/usage/{userId}")
     public Response getTotalUsage(@PathParam("userId") String userId) {
@@ -56,6 +70,54 @@ public class EnergyResource {
         return Response.ok(totalUsage).build();
     }
     
+    @GET
+    @Path("/usage/breakdown")
+    public Response getUsageBreakdown(
+            @QueryParam("start") String startStr,
+            @QueryParam("end") String endStr,
+            @QueryParam("groupBy") @DefaultValue("floor,room") String groupBy,
+            @QueryParam("path") String pathStr) {
+        
+        // Default to the last 24 hours, truncated to the minute so repeated queries share memoized totals
+        LocalDateTime end = endStr != null
+                ? LocalDateTime.parse(endStr, formatter)
+                : LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        LocalDateTime start = startStr != null ? LocalDateTime.parse(startStr, formatter) : end.minusDays(1);
+        
+        List<GroupingLevel> levels = new ArrayList<>();
+        for (String level : groupBy.split(",")) {
+            if (!level.trim().isEmpty()) {
+                try {
+                    levels.add(GroupingLevel.fromString(level));
+                } catch (IllegalArgumentException e) {
+                    return Response.status(Response.Status.BAD_REQUEST)
+                            .entity(Collections.singletonMap("error", e.getMessage()))
+                            .build();
+                }
+            }
+        }
+        
+        // Path segments are node keys: group names, and appliance ids at the leaf level
+        List<String> path = new ArrayList<>();
+        if (pathStr != null && !pathStr.isEmpty()) {
+            path.addAll(Arrays.asList(pathStr.split("/")));
+        }
+        
+        UsageNode breakdown = energyService.getUsageBreakdown(start, end, levels, path);
+        if (breakdown != null) {
+            return Response.ok(breakdown).build();
+        } else {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+    }
+    
+    @GET
+    @Path("/anomalies")
+    public Response getRecentAnomalies() {
+        List<EnergyAnomaly> anomalies = energyService.getRecentAnomalies();
+        return Response.ok(anomalies).build();
+    }
+    
     @POST
     @Path("/cleanup")
     public Response cleanupOldData() {
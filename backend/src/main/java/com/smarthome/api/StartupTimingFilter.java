@@ -0,0 +1,29 @@
+package com.smarthome.api;
+
+import com.smarthome.util.DeploymentTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Provider
+public class StartupTimingFilter implements ContainerResponseFilter {
+    
+    private static final Logger logger = LoggerFactory.getLogger(StartupTimingFilter.class);
+    
+    private static final AtomicBoolean firstResponseServed = new AtomicBoolean();
+    
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) throws IOException {
+        if (!firstResponseServed.get() && firstResponseServed.compareAndSet(false, true)) {
+            logger.info("First response ({} {} -> {}) served {} ms after deployment start",
+                    requestContext.getMethod(), requestContext.getUriInfo().getPath(),
+                    responseContext.getStatus(), DeploymentTimer.millisSinceDeploymentStart());
+        }
+    }
+}
\ No newline at end of file
@@ -14,10 +14,17 @@ public class ApplianceDAO {
     private EntityManager entityManager;
     
     public List<Appliance> getAllAppliances() {
-        return entityManager.createQuery("SELECT a FROM Appliance a", Appliance.class)
+        return entityManager.createNamedQuery("Appliance.findAll", Appliance.class)
                 .getResultList();
     }
     
+    public boolean hasAppliances() {
+        return !entityManager.createNamedQuery("Appliance.findIds", Long.class)
+                .setMaxResults(1)
+                .getResultList()
+                .isEmpty();
+    }
+    
     public Appliance findById(Long id) {
         return entityManager.find(Appliance.class, id);
     }
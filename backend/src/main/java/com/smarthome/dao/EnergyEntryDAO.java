@@ -1,40 +1,119 @@
 package com.smarthome.dao;
 
 import com.smarthome.model.EnergyEntry;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
 
 import javax.ejb.Stateless;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Stateless
 public class EnergyEntryDAO {
     
+    // Ingest bypasses Hibernate's JDBC batching: each chunk is one set-based statement
+    private static final int UPSERT_CHUNK_SIZE = 1000;
+    
+    // xmax = 0 only for rows this statement inserted, not for rows it updated on conflict
+    private static final String UPSERT_SQL =
+            "INSERT INTO energy_entries (id, timestamp, energy_kwh, appliance_id) " +
+            "SELECT * FROM unnest(?::int8[], ?::timestamp[], ?::float8[], ?::int8[]) " +
+            "ON CONFLICT (appliance_id, timestamp) DO UPDATE SET energy_kwh = EXCLUDED.energy_kwh " +
+            "RETURNING id, (xmax = 0) AS inserted";
+    
     @PersistenceContext(unitName = "energyPU")
     private EntityManager entityManager;
     
     public List<EnergyEntry> getEntriesByApplianceId(Long applianceId) {
-        return entityManager.createQuery(
-                "SELECT e FROM EnergyEntry e WHERE e.appliance.id = :applianceId ORDER BY e.timestamp",
-                EnergyEntry.class)
+        return entityManager.createNamedQuery("EnergyEntry.findByApplianceId", EnergyEntry.class)
                 .setParameter("applianceId", applianceId)
                 .getResultList();
     }
     
     public List<EnergyEntry> getEntriesByApplianceIdAndTimeRange(Long applianceId, LocalDateTime start, LocalDateTime end) {
-        return entityManager.createQuery(
-                "SELECT e FROM EnergyEntry e WHERE e.appliance.id = :applianceId " +
-                "AND e.timestamp BETWEEN :start AND :end ORDER BY e.timestamp",
-                EnergyEntry.class)
+        return entityManager.createNamedQuery("EnergyEntry.findByApplianceIdAndTimeRange", EnergyEntry.class)
                 .setParameter("applianceId", applianceId)
                 .setParameter("start", start)
                 .setParameter("end", end)
                 .getResultList();
     }
     
-    public void create(EnergyEntry entry) {
-        entityManager.persist(entry);
+    public Map<Long, Double> sumUsageByApplianceInTimeRange(LocalDateTime start, LocalDateTime end) {
+        List<Object[]> rows = entityManager.createNamedQuery("EnergyEntry.sumByApplianceInTimeRange", Object[].class)
+                .setParameter("start", start)
+                .setParameter("end", end)
+                .getResultList();
+        
+        Map<Long, Double> totals = new HashMap<>();
+        for (Object[] row : rows) {
+            totals.put((Long) row[0], (Double) row[1]);
+        }
+        return totals;
+    }
+    
+    public boolean upsert(EnergyEntry entry) {
+        return !upsertAll(Collections.singletonList(entry)).isEmpty();
+    }
+    
+    /**
+     * Inserts the readings, or overwrites the stored value of any (appliance, timestamp) that
+     * already exists, and returns the readings that were new rows. Each key may appear only
+     * once per call.
+     */
+    public List<EnergyEntry> upsertAll(List<EnergyEntry> entries) {
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        IdentifierGenerator idGenerator = session.getFactory().getMetamodel()
+                .entityPersister(EnergyEntry.class)
+                .getIdentifierGenerator();
+        
+        // Ids come from the pooled sequence optimizer; an id is simply unused when the row already exists
+        Map<Long, EnergyEntry> entriesById = new HashMap<>();
+        for (EnergyEntry entry : entries) {
+            entry.setId((Long) idGenerator.generate(session, entry));
+            entriesById.put(entry.getId(), entry);
+        }
+        
+        return session.doReturningWork(connection -> {
+            List<EnergyEntry> inserted = new ArrayList<>();
+            try (PreparedStatement statement = connection.prepareStatement(UPSERT_SQL)) {
+                for (int from = 0; from < entries.size(); from += UPSERT_CHUNK_SIZE) {
+                    List<EnergyEntry> chunk = entries.subList(from, Math.min(from + UPSERT_CHUNK_SIZE, entries.size()));
+                    Long[] ids = new Long[chunk.size()];
+                    Timestamp[] timestamps = new Timestamp[chunk.size()];
+                    Double[] energies = new Double[chunk.size()];
+                    Long[] applianceIds = new Long[chunk.size()];
+                    for (int i = 0; i < chunk.size(); i++) {
+                        EnergyEntry entry = chunk.get(i);
+                        ids[i] = entry.getId();
+                        timestamps[i] = Timestamp.valueOf(entry.getTimestamp());
+                        energies[i] = entry.getEnergyKwh();
+                        applianceIds[i] = entry.getAppliance().getId();
+                    }
+                    
+                    statement.setArray(1, connection.createArrayOf("int8", ids));
+                    statement.setArray(2, connection.createArrayOf("timestamp", timestamps));
+                    statement.setArray(3, connection.createArrayOf("float8", energies));
+                    statement.setArray(4, connection.createArrayOf("int8", applianceIds));
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            if (resultSet.getBoolean(2)) {
+                                inserted.add(entriesById.get(resultSet.getLong(1)));
+                            }
+                        }
+                    }
+                }
+            }
+            return inserted;
+        });
     }
     
     public void deleteOldEntries(LocalDateTime cutoffTime) {
@@ -6,6 +6,10 @@ import java.util.List;
 
 @Entity
 @Table(name = "appliances")
+@NamedQueries({
+    @NamedQuery(name = "Appliance.findAll", query = "SELECT a FROM Appliance a"),
+    @NamedQuery(name = "Appliance.findIds", query = "SELECT a.id FROM Appliance a")
+})
 public class Appliance {
     
     @Id
@@ -21,6 +25,15 @@ public class Appliance {
     @Column(name = "current_power_kw", nullable = false)
     private double currentPowerKw;
     
+    @Column
+    private String floor;
+    
+    @Column
+    private String room;
+    
+    @Column
+    private String category;
+    
     @OneToMany(mappedBy = "appliance", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<EnergyEntry> history = new ArrayList<>();
     
@@ -67,6 +80,30 @@ public class Appliance {
         this.currentPowerKw = currentPowerKw;
     }
     
+    public String getFloor() {
+        return floor;
+    }
+    
+    public void setFloor(String floor) {
+        this.floor = floor;
+    }
+    
+    public String getRoom() {
+        return room;
+    }
+    
+    public void setRoom(String room) {
+        this.room = room;
+    }
+    
+    public String getCategory() {
+        return category;
+    }
+    
+    public void setCategory(String category) {
+        this.category = category;
+    }
+    
     public List<EnergyEntry> getHistory() {
         return history;
     }
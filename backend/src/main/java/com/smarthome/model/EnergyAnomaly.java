@@ -0,0 +1,69 @@
+package com.smarthome.model;
+
+import java.time.LocalDateTime;
+
+public class EnergyAnomaly {
+    
+    private Long applianceId;
+    
+    private LocalDateTime timestamp;
+    
+    private double energyKwh;
+    
+    private double expectedKwh;
+    
+    private double zScore;
+    
+    public EnergyAnomaly() {
+    }
+    
+    public EnergyAnomaly(Long applianceId, LocalDateTime timestamp, double energyKwh, double expectedKwh, double zScore) {
+        this.applianceId = applianceId;
+        this.timestamp = timestamp;
+        this.energyKwh = energyKwh;
+        this.expectedKwh = expectedKwh;
+        this.zScore = zScore;
+    }
+    
+    // Getters and Setters
+    
+    public Long getApplianceId() {
+        return applianceId;
+    }
+    
+    public void setApplianceId(Long applianceId) {
+        this.applianceId = applianceId;
+    }
+    
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+    
+    public void setTimestamp(LocalDateTime timestamp) {
+        this.timestamp = timestamp;
+    }
+    
+    public double getEnergyKwh() {
+        return energyKwh;
+    }
+    
+    public void setEnergyKwh(double energyKwh) {
+        this.energyKwh = energyKwh;
+    }
+    
+    public double getExpectedKwh() {
+        return expectedKwh;
+    }
+    
+    public void setExpectedKwh(double expectedKwh) {
+        this.expectedKwh = expectedKwh;
+    }
+    
+    public double getZScore() {
+        return zScore;
+    }
+    
+    public void setZScore(double zScore) {
+        this.zScore = zScore;
+    }
+}
\ No newline at end of file
@@ -4,11 +4,23 @@ import javax.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "energy_entries")
+@Table(name = "energy_entries", uniqueConstraints =
+        @UniqueConstraint(name = "uq_energy_entries_appliance_timestamp", columnNames = {"appliance_id", "timestamp"}))
+@NamedQueries({
+    @NamedQuery(name = "EnergyEntry.findByApplianceId",
+            query = "SELECT e FROM EnergyEntry e WHERE e.appliance.id = :applianceId ORDER BY e.timestamp"),
+    @NamedQuery(name = "EnergyEntry.findByApplianceIdAndTimeRange",
+            query = "SELECT e FROM EnergyEntry e WHERE e.appliance.id = :applianceId " +
+                    "AND e.timestamp BETWEEN :start AND :end ORDER BY e.timestamp"),
+    @NamedQuery(name = "EnergyEntry.sumByApplianceInTimeRange",
+            query = "SELECT e.appliance.id, SUM(e.energyKwh) FROM EnergyEntry e " +
+                    "WHERE e.timestamp BETWEEN :start AND :end GROUP BY e.appliance.id")
+})
 public class EnergyEntry {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "energy_entries_seq")
+    @SequenceGenerator(name = "energy_entries_seq", sequenceName = "energy_entries_id_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false)
@@ -0,0 +1,48 @@
+package com.smarthome.model;
+
+import java.util.Arrays;
+
+public enum GroupingLevel {
+    
+    FLOOR,
+    ROOM,
+    CATEGORY,
+    APPLIANCE;
+    
+    private static final String UNASSIGNED = "Unassigned";
+    
+    public String keyOf(Appliance appliance) {
+        String key;
+        switch (this) {
+            case FLOOR:
+                key = appliance.getFloor();
+                break;
+            case ROOM:
+                key = appliance.getRoom();
+                break;
+            case CATEGORY:
+                key = appliance.getCategory();
+                break;
+            default:
+                // Appliance names need not be unique, so leaves are keyed by id
+                key = appliance.getId() == null ? null : String.valueOf(appliance.getId());
+                break;
+        }
+        return key == null || key.isEmpty() ? UNASSIGNED : key;
+    }
+    
+    public String labelOf(Appliance appliance) {
+        return this == APPLIANCE ? appliance.getName() : keyOf(appliance);
+    }
+    
+    public static GroupingLevel fromString(String value) {
+        String name = value.trim().toUpperCase();
+        for (GroupingLevel level : values()) {
+            if (level.name().equals(name)) {
+                return level;
+            }
+        }
+        throw new IllegalArgumentException("Unknown grouping level '" + value.trim()
+                + "', expected one of " + Arrays.toString(values()).toLowerCase());
+    }
+}
\ No newline at end of file
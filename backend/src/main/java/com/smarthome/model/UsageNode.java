@@ -0,0 +1,78 @@
+package com.smarthome.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class UsageNode {
+    
+    private String key;
+    
+    private String name;
+    
+    private GroupingLevel level;
+    
+    private double totalKwh;
+    
+    private List<UsageNode> children = new ArrayList<>();
+    
+    public UsageNode() {
+    }
+    
+    public UsageNode(String key, String name, GroupingLevel level, double totalKwh) {
+        this.key = key;
+        this.name = name;
+        this.level = level;
+        this.totalKwh = totalKwh;
+    }
+    
+    public UsageNode findChild(String childKey) {
+        for (UsageNode child : children) {
+            if (child.getKey().equals(childKey)) {
+                return child;
+            }
+        }
+        return null;
+    }
+    
+    // Getters and Setters
+    
+    public String getKey() {
+        return key;
+    }
+    
+    public void setKey(String key) {
+        this.key = key;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public void setName(String name) {
+        this.name = name;
+    }
+    
+    public GroupingLevel getLevel() {
+        return level;
+    }
+    
+    public void setLevel(GroupingLevel level) {
+        this.level = level;
+    }
+    
+    public double getTotalKwh() {
+        return totalKwh;
+    }
+    
+    public void setTotalKwh(double totalKwh) {
+        this.totalKwh = totalKwh;
+    }
+    
+    public List<UsageNode> getChildren() {
+        return children;
+    }
+    
+    public void setChildren(List<UsageNode> children) {
+        this.children = children;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,163 @@
+package com.smarthome.service;
+
+import com.smarthome.model.EnergyAnomaly;
+import com.smarthome.model.EnergyEntry;
+import com.smarthome.util.TransactionCallbacks;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.enterprise.event.Event;
+import javax.inject.Inject;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streaming anomaly detector for incoming energy readings.
+ *
+ * Keeps an exponentially weighted mean/variance per appliance and hour of day,
+ * so each reading is scored and folded into the baseline in O(1) time and memory
+ * without touching the database, and gradual drift is followed rather than
+ * flagged. Readings are observed only once their transaction commits. Flagged
+ * readings stay out of the baseline, but a run of them re-baselines the
+ * appliance, so a lasting change in level becomes the new normal.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class AnomalyDetectionService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(AnomalyDetectionService.class);
+    
+    private static final int HOURS_PER_DAY = 24;
+    static final long MIN_SAMPLES = 8;
+    static final double DECAY = 0.05; // weight of the newest reading once the warm-up is over
+    static final double Z_SCORE_THRESHOLD = 4.0;
+    static final int REBASELINE_AFTER = 8; // consecutive flagged readings, two hours at the 15-minute cadence
+    private static final double MIN_STD_DEV_RATIO = 0.1; // fraction of the mean, guards against flat baselines
+    private static final double MIN_STD_DEV_KWH = 0.001;
+    private static final int MAX_RECENT_ANOMALIES = 100;
+    
+    private final ConcurrentMap<Long, ApplianceBaseline> baselines = new ConcurrentHashMap<>();
+    
+    private final ConcurrentLinkedDeque<EnergyAnomaly> recentAnomalies = new ConcurrentLinkedDeque<>();
+    
+    private final AtomicInteger recentAnomalyCount = new AtomicInteger();
+    
+    @Inject
+    private Event<EnergyAnomaly> anomalyEvent;
+    
+    @Resource
+    private TransactionSynchronizationRegistry transactionRegistry;
+    
+    public void observeAfterCommit(Long applianceId, List<EnergyEntry> entries) {
+        if (!entries.isEmpty()) {
+            TransactionCallbacks.afterCommit(transactionRegistry, () -> {
+                for (EnergyEntry entry : entries) {
+                    observe(applianceId, entry);
+                }
+            });
+        }
+    }
+    
+    public EnergyAnomaly observe(Long applianceId, EnergyEntry entry) {
+        if (applianceId == null || entry.getTimestamp() == null) {
+            return null;
+        }
+        
+        ApplianceBaseline baseline = baselines.computeIfAbsent(applianceId, id -> new ApplianceBaseline());
+        EnergyAnomaly anomaly = baseline.observe(applianceId, entry);
+        
+        if (anomaly != null) {
+            recordAnomaly(anomaly);
+        }
+        return anomaly;
+    }
+    
+    public List<EnergyAnomaly> getRecentAnomalies() {
+        return new ArrayList<>(recentAnomalies);
+    }
+    
+    public void forget(Long applianceId) {
+        baselines.remove(applianceId);
+    }
+    
+    private void recordAnomaly(EnergyAnomaly anomaly) {
+        logger.warn("Anomalous reading for appliance {} at {}: {} kWh (expected {} kWh, z={})",
+                anomaly.getApplianceId(), anomaly.getTimestamp(), anomaly.getEnergyKwh(),
+                anomaly.getExpectedKwh(), anomaly.getZScore());
+        
+        recentAnomalies.addFirst(anomaly);
+        if (recentAnomalyCount.incrementAndGet() > MAX_RECENT_ANOMALIES && recentAnomalies.pollLast() != null) {
+            recentAnomalyCount.decrementAndGet();
+        }
+        
+        anomalyEvent.fire(anomaly);
+    }
+    
+    static final class ApplianceBaseline {
+        
+        private final long[] counts = new long[HOURS_PER_DAY];
+        private final double[] means = new double[HOURS_PER_DAY];
+        private final double[] variances = new double[HOURS_PER_DAY];
+        
+        // Readings flagged in a row, kept so a re-baseline can start from them
+        private final EnergyEntry[] flaggedRun = new EnergyEntry[REBASELINE_AFTER];
+        private int flaggedRunLength;
+        
+        synchronized EnergyAnomaly observe(Long applianceId, EnergyEntry entry) {
+            int hour = entry.getTimestamp().getHour();
+            double value = entry.getEnergyKwh();
+            double mean = means[hour];
+            
+            if (counts[hour] >= MIN_SAMPLES) {
+                double stdDev = Math.sqrt(variances[hour]);
+                stdDev = Math.max(stdDev, Math.max(Math.abs(mean) * MIN_STD_DEV_RATIO, MIN_STD_DEV_KWH));
+                double zScore = (value - mean) / stdDev;
+                if (Math.abs(zScore) >= Z_SCORE_THRESHOLD) {
+                    // Keep it out of the baseline, or a stuck-on appliance would become its own normal
+                    flaggedRun[flaggedRunLength++] = entry;
+                    if (flaggedRunLength == REBASELINE_AFTER) {
+                        rebaseline(applianceId);
+                    }
+                    return new EnergyAnomaly(applianceId, entry.getTimestamp(), value, mean, zScore);
+                }
+            }
+            
+            flaggedRunLength = 0;
+            update(hour, value);
+            return null;
+        }
+        
+        private void update(int hour, double value) {
+            // Exponentially weighted mean/variance; the 1/n weight during warm-up makes it a plain average
+            long count = ++counts[hour];
+            double weight = Math.max(1.0 / count, DECAY);
+            double delta = value - means[hour];
+            means[hour] += weight * delta;
+            variances[hour] = (1 - weight) * (variances[hour] + weight * delta * delta);
+        }
+        
+        private void rebaseline(Long applianceId) {
+            // Persistent deviation means the appliance changed (new model, season), not that every reading is wrong
+            logger.info("Re-baselining appliance {} after {} consecutive anomalous readings",
+                    applianceId, REBASELINE_AFTER);
+            Arrays.fill(counts, 0);
+            Arrays.fill(means, 0);
+            Arrays.fill(variances, 0);
+            for (EnergyEntry flagged : flaggedRun) {
+                update(flagged.getTimestamp().getHour(), flagged.getEnergyKwh());
+            }
+            Arrays.fill(flaggedRun, null);
+            flaggedRunLength = 0;
+        }
+    }
+}
\ No newline at end of file
@@ -16,6 +16,15 @@ public class ApplianceService {
     @Inject
     private ApplianceDAO applianceDAO;
     
+    @Inject
+    private EnergyService energyService;
+    
+    @Inject
+    private AnomalyDetectionService anomalyDetectionService;
+    
+    @Inject
+    private UsageAggregationService usageAggregationService;
+    
     private final Random random = new Random();
     
     public List<Appliance> getAllAppliances() {
@@ -28,27 +37,32 @@ public class ApplianceService {
     
     public void createAppliance(Appliance appliance) {
         applianceDAO.create(appliance);
+        usageAggregationService.invalidateAll();
     }
     
     public Appliance updateAppliance(Appliance appliance) {
-        return applianceDAO.update(appliance);
+        Appliance updated = applianceDAO.update(appliance);
+        // Floor, room or category may have moved
+        usageAggregationService.invalidateAll();
+        return updated;
     }
     
     public void deleteAppliance(Long id) {
         applianceDAO.delete(id);
+        anomalyDetectionService.forget(id);
+        usageAggregationService.invalidateAll();
     }
     
     public void updateAppliancePower(Long id, double newPower) {
         Appliance appliance = applianceDAO.findById(id);
         if (appliance != null) {
             appliance.setCurrentPowerKw(newPower);
+            applianceDAO.update(appliance);
             
-            // Create a new energy entry
+            // Create a new energy entry through the idempotent ingest path
             double energyKwh = newPower * 0.25; // 15 minutes in hours
             EnergyEntry entry = new EnergyEntry(LocalDateTime.now(), energyKwh);
-            appliance.addEnergyEntry(entry);
-            
-            applianceDAO.update(appliance);
+            energyService.addEnergyEntry(id, entry);
         }
     }
     
@@ -64,7 +78,7 @@ public class ApplianceService {
     }
     
     public void initializeDefaultAppliances() {
-        if (applianceDAO.getAllAppliances().isEmpty()) {
+        if (!applianceDAO.hasAppliances()) {
             createDefaultAppliance("Refrigerator", "refrigerator", getRandomPower(0.1, 0.5));
             createDefaultAppliance("Television", "tv", getRandomPower(0.05, 0.3));
             createDefaultAppliance("Heater", "flame", getRandomPower(0.5, 1.5));
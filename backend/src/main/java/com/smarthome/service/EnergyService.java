@@ -3,12 +3,18 @@ package com.smarthome.service;
 import com.smarthome.dao.ApplianceDAO;
 import com.smarthome.dao.EnergyEntryDAO;
 import com.smarthome.model.Appliance;
+import com.smarthome.model.EnergyAnomaly;
 import com.smarthome.model.EnergyEntry;
+import com.smarthome.model.GroupingLevel;
+import com.smarthome.model.UsageNode;
 
 import javax.ejb.Stateless;
 import javax.inject.Inject;
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Stateless
 public class EnergyService {
@@ -19,6 +25,15 @@ public class EnergyService {
     @Inject
     private ApplianceDAO applianceDAO;
     
+    @Inject
+    private AnomalyDetectionService anomalyDetectionService;
+    
+    @Inject
+    private UsageAggregationService usageAggregationService;
+    
+    @Inject
+    private RecentReadingFilter recentReadingFilter;
+    
     public List<EnergyEntry> getApplianceHistory(Long applianceId) {
         return energyEntryDAO.getEntriesByApplianceId(applianceId);
     }
@@ -28,13 +43,49 @@ public class EnergyService {
     }
     
     public void addEnergyEntry(Long applianceId, EnergyEntry entry) {
+        addEnergyEntries(applianceId, Collections.singletonList(entry));
+    }
+    
+    public void addEnergyEntries(Long applianceId, List<EnergyEntry> entries) {
         Appliance appliance = applianceDAO.findById(applianceId);
         if (appliance != null) {
-            entry.setAppliance(appliance);
-            energyEntryDAO.create(entry);
+            // The last reading wins when a batch repeats a timestamp
+            Map<LocalDateTime, EnergyEntry> byTimestamp = new LinkedHashMap<>();
+            for (EnergyEntry entry : entries) {
+                byTimestamp.put(entry.getTimestamp(), entry);
+            }
+            
+            List<EnergyEntry> accepted = recentReadingFilter.acceptNew(applianceId, byTimestamp.values());
+            if (accepted.isEmpty()) {
+                return;
+            }
+            
+            LocalDateTime earliest = null;
+            LocalDateTime latest = null;
+            for (EnergyEntry entry : accepted) {
+                entry.setAppliance(appliance);
+                LocalDateTime timestamp = entry.getTimestamp();
+                if (timestamp != null) {
+                    earliest = earliest == null || timestamp.isBefore(earliest) ? timestamp : earliest;
+                    latest = latest == null || timestamp.isAfter(latest) ? timestamp : latest;
+                }
+            }
+            List<EnergyEntry> inserted = energyEntryDAO.upsertAll(accepted);
+            
+            // Corrections overwrite a reading the detector has already seen, so only new rows are scored
+            anomalyDetectionService.observeAfterCommit(applianceId, inserted);
+            
+            if (earliest != null) {
+                // Late readings land in older windows, so evict by reading time rather than arrival time
+                usageAggregationService.invalidate(earliest, latest);
+            }
         }
     }
     
+    public List<EnergyAnomaly> getRecentAnomalies() {
+        return anomalyDetectionService.getRecentAnomalies();
+    }
+    
     public double calculateTotalUsage(String userId) {
         // In a real application, you would filter by user ID
         // For simplicity, we'll calculate total usage across all appliances
@@ -55,9 +106,14 @@ public class EnergyService {
         return totalUsage;
     }
     
+    public UsageNode getUsageBreakdown(LocalDateTime start, LocalDateTime end, List<GroupingLevel> levels, List<String> path) {
+        return usageAggregationService.drillDown(start, end, levels, path);
+    }
+    
     public void cleanupOldData() {
         // Remove data older than 7 days
         LocalDateTime cutoffTime = LocalDateTime.now().minusDays(7);
         energyEntryDAO.deleteOldEntries(cutoffTime);
+        usageAggregationService.invalidateAll();
     }
 }
\ No newline at end of file
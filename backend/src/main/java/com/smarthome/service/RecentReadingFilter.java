@@ -0,0 +1,206 @@
+package com.smarthome.service;
+
+import com.smarthome.model.EnergyEntry;
+import com.smarthome.util.TransactionCallbacks;
+
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Best-effort in-memory filter of recently stored readings, bucketed by reading minute.
+ *
+ * Exact gateway retries of a reading whose transaction has already committed are
+ * dropped before they reach the database. Readings are published to the filter
+ * only after commit, so a retry racing an in-flight or rolled-back request is
+ * never rejected; both copies reach the upsert in EnergyEntryDAO, which stays the
+ * source of truth. Anything older, too far in the future, or corrected also falls
+ * through to the upsert.
+ *
+ * Each minute keeps a flat open-addressing table of (appliance, offset within the
+ * minute, value bits), 24 bytes per slot, capped at 2^17 slots (about 98k readings
+ * at the load limit). At most 13 minutes are held, so the filter never exceeds
+ * about 40 MB. That covers steady rates of roughly 1,600 readings per second; above
+ * that, each minute stops tracking once full and the remaining retries are absorbed
+ * by the upsert rather than filtered here.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class RecentReadingFilter {
+    
+    private static final long RETAINED_MINUTES = 10;
+    private static final long FUTURE_TOLERANCE_MINUTES = 2;
+    
+    private final ConcurrentMap<Long, ReadingTable> buckets = new ConcurrentHashMap<>();
+    
+    private final AtomicLong lastEvictedMinute = new AtomicLong();
+    
+    @Resource
+    private TransactionSynchronizationRegistry transactionRegistry;
+    
+    public List<EnergyEntry> acceptNew(Long applianceId, Collection<EnergyEntry> entries) {
+        long currentMinute = minuteOf(LocalDateTime.now());
+        evictExpiredBuckets(currentMinute);
+        
+        List<EnergyEntry> accepted = new ArrayList<>(entries.size());
+        List<EnergyEntry> tracked = new ArrayList<>(entries.size());
+        
+        for (EnergyEntry entry : entries) {
+            if (!isTracked(applianceId, entry.getTimestamp(), currentMinute)) {
+                // Not tracked here; the database upsert still keeps it idempotent
+                accepted.add(entry);
+                continue;
+            }
+            
+            ReadingTable bucket = buckets.get(minuteOf(entry.getTimestamp()));
+            long offset = offsetWithinMinute(entry.getTimestamp());
+            if (bucket == null || !bucket.contains(applianceId, offset, energyBits(entry))) {
+                accepted.add(entry);
+                tracked.add(entry);
+            }
+        }
+        
+        if (!tracked.isEmpty()) {
+            // Only a committed reading may reject its retries
+            TransactionCallbacks.afterCommit(transactionRegistry, () -> publish(applianceId, tracked));
+        }
+        return accepted;
+    }
+    
+    private void publish(Long applianceId, List<EnergyEntry> entries) {
+        long currentMinute = minuteOf(LocalDateTime.now());
+        for (EnergyEntry entry : entries) {
+            if (isTracked(applianceId, entry.getTimestamp(), currentMinute)) {
+                buckets.computeIfAbsent(minuteOf(entry.getTimestamp()), m -> new ReadingTable())
+                        .add(applianceId, offsetWithinMinute(entry.getTimestamp()), energyBits(entry));
+            }
+        }
+    }
+    
+    private void evictExpiredBuckets(long currentMinute) {
+        long horizon = currentMinute - RETAINED_MINUTES;
+        long evicted = lastEvictedMinute.get();
+        if (evicted < currentMinute && lastEvictedMinute.compareAndSet(evicted, currentMinute)) {
+            buckets.keySet().removeIf(minute -> minute < horizon);
+        }
+    }
+    
+    private static boolean isTracked(Long applianceId, LocalDateTime timestamp, long currentMinute) {
+        if (applianceId == null || applianceId <= 0 || timestamp == null) {
+            return false;
+        }
+        long minute = minuteOf(timestamp);
+        return minute >= currentMinute - RETAINED_MINUTES && minute <= currentMinute + FUTURE_TOLERANCE_MINUTES;
+    }
+    
+    private static long minuteOf(LocalDateTime timestamp) {
+        return Math.floorDiv(timestamp.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+    
+    private static long offsetWithinMinute(LocalDateTime timestamp) {
+        return timestamp.getSecond() * 1_000_000_000L + timestamp.getNano();
+    }
+    
+    private static long energyBits(EnergyEntry entry) {
+        return Double.doubleToLongBits(entry.getEnergyKwh());
+    }
+    
+    /**
+     * Open-addressing set of readings stored as consecutive longs, so a minute
+     * of traffic costs one array instead of an object per reading. Entries are
+     * only ever added; a bucket is dropped as a whole once it expires.
+     */
+    static final class ReadingTable {
+        
+        static final int INITIAL_CAPACITY = 256;
+        static final int MAX_CAPACITY = 1 << 17;
+        static final double MAX_LOAD = 0.75;
+        
+        private static final int SLOT_WIDTH = 3;
+        
+        // Appliance ids are positive, which leaves 0 free to mark an empty slot
+        private static final long EMPTY = 0L;
+        
+        private long[] slots = new long[INITIAL_CAPACITY * SLOT_WIDTH];
+        private int size;
+        
+        synchronized boolean contains(long applianceId, long offset, long energyBits) {
+            return slots[find(applianceId, offset, energyBits)] != EMPTY;
+        }
+        
+        /**
+         * Returns false when the reading could not be tracked because the table is full.
+         */
+        synchronized boolean add(long applianceId, long offset, long energyBits) {
+            int base = find(applianceId, offset, energyBits);
+            if (slots[base] != EMPTY) {
+                return true;
+            }
+            if (size + 1 > capacity() * MAX_LOAD) {
+                if (capacity() >= MAX_CAPACITY) {
+                    return false;
+                }
+                resize(capacity() * 2);
+                base = find(applianceId, offset, energyBits);
+            }
+            
+            slots[base] = applianceId;
+            slots[base + 1] = offset;
+            slots[base + 2] = energyBits;
+            size++;
+            return true;
+        }
+        
+        synchronized int size() {
+            return size;
+        }
+        
+        synchronized int capacity() {
+            return slots.length / SLOT_WIDTH;
+        }
+        
+        /**
+         * Index of the slot holding the reading, or of the empty slot where it belongs.
+         * The load limit guarantees an empty slot, so the probe always terminates.
+         */
+        private int find(long applianceId, long offset, long energyBits) {
+            int mask = capacity() - 1;
+            for (int i = indexOf(applianceId, offset, energyBits) & mask; ; i = (i + 1) & mask) {
+                int base = i * SLOT_WIDTH;
+                long id = slots[base];
+                if (id == EMPTY
+                        || (id == applianceId && slots[base + 1] == offset && slots[base + 2] == energyBits)) {
+                    return base;
+                }
+            }
+        }
+        
+        private void resize(int newCapacity) {
+            long[] old = slots;
+            slots = new long[newCapacity * SLOT_WIDTH];
+            for (int base = 0; base < old.length; base += SLOT_WIDTH) {
+                if (old[base] != EMPTY) {
+                    System.arraycopy(old, base, slots, find(old[base], old[base + 1], old[base + 2]), SLOT_WIDTH);
+                }
+            }
+        }
+        
+        private static int indexOf(long applianceId, long offset, long energyBits) {
+            long h = applianceId * 0x9E3779B97F4A7C15L ^ offset * 0xC2B2AE3D27D4EB4FL ^ energyBits;
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            return (int) h;
+        }
+    }
+}
\ No newline at end of file
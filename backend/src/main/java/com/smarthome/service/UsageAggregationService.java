@@ -0,0 +1,325 @@
+package com.smarthome.service;
+
+import com.smarthome.dao.ApplianceDAO;
+import com.smarthome.dao.EnergyEntryDAO;
+import com.smarthome.model.Appliance;
+import com.smarthome.model.GroupingLevel;
+import com.smarthome.model.UsageNode;
+import com.smarthome.util.TransactionCallbacks;
+
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.inject.Inject;
+import javax.transaction.Status;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds per-floor / per-room / per-category usage trees for a time window.
+ *
+ * Totals come from one grouped query per window and are folded into the tree
+ * with fork/join. Each tree is memoized, so drill-downs and sibling queries
+ * within the same window are answered from memory until a committed write
+ * touches that window.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class UsageAggregationService {
+    
+    private static final String ROOT_NAME = "All";
+    private static final int PARALLEL_THRESHOLD = 1024;
+    private static final int MAX_MEMOIZED_WINDOWS = 256;
+    private static final int MAX_LOGGED_INVALIDATIONS = 1024;
+    private static final String PENDING_RANGE_KEY = UsageAggregationService.class.getName() + ".pendingRange";
+    
+    private final ConcurrentMap<WindowKey, UsageNode> memo = new ConcurrentHashMap<>();
+    
+    // Recent evictions, so a computation can tell whether its own window went stale
+    private final ConcurrentLinkedDeque<Invalidation> invalidations = new ConcurrentLinkedDeque<>();
+    
+    private final AtomicInteger loggedInvalidations = new AtomicInteger();
+    
+    private final AtomicLong invalidationSequence = new AtomicLong();
+    
+    private final AtomicLong droppedThroughSequence = new AtomicLong();
+    
+    @Inject
+    private EnergyEntryDAO energyEntryDAO;
+    
+    @Inject
+    private ApplianceDAO applianceDAO;
+    
+    @Resource
+    private TransactionSynchronizationRegistry transactionRegistry;
+    
+    public UsageNode aggregate(LocalDateTime start, LocalDateTime end, List<GroupingLevel> levels) {
+        List<GroupingLevel> hierarchy = new ArrayList<>(levels);
+        if (hierarchy.isEmpty() || hierarchy.get(hierarchy.size() - 1) != GroupingLevel.APPLIANCE) {
+            hierarchy.add(GroupingLevel.APPLIANCE);
+        }
+        
+        WindowKey key = new WindowKey(start, end, hierarchy);
+        UsageNode cached = memo.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        
+        long observedSequence = invalidationSequence.get();
+        UsageNode tree = computeTree(start, end, hierarchy);
+        
+        if (memo.size() >= MAX_MEMOIZED_WINDOWS) {
+            memo.clear();
+        }
+        memo.put(key, tree);
+        
+        // Checked after publishing: an eviction of this window that raced the computation either
+        // shows up in the log here or runs its removeIf after our put
+        if (invalidatedSince(observedSequence, key)) {
+            memo.remove(key, tree);
+        }
+        return tree;
+    }
+    
+    public UsageNode drillDown(LocalDateTime start, LocalDateTime end, List<GroupingLevel> levels, List<String> path) {
+        UsageNode node = aggregate(start, end, levels);
+        for (String key : path) {
+            node = node.findChild(key);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node;
+    }
+    
+    public void invalidate(LocalDateTime from, LocalDateTime to) {
+        if (transactionRegistry.getTransactionStatus() == Status.STATUS_NO_TRANSACTION) {
+            evict(from, to);
+            return;
+        }
+        
+        // One eviction per transaction, covering every reading it wrote
+        PendingRange pending = (PendingRange) transactionRegistry.getResource(PENDING_RANGE_KEY);
+        if (pending != null) {
+            pending.widen(from, to);
+            return;
+        }
+        PendingRange range = new PendingRange(from, to);
+        transactionRegistry.putResource(PENDING_RANGE_KEY, range);
+        TransactionCallbacks.afterCommit(transactionRegistry, () -> evict(range.from, range.to));
+    }
+    
+    public void invalidateAll() {
+        invalidate(LocalDateTime.MIN, LocalDateTime.MAX);
+    }
+    
+    private void evict(LocalDateTime from, LocalDateTime to) {
+        invalidations.addFirst(new Invalidation(invalidationSequence.incrementAndGet(), from, to));
+        if (loggedInvalidations.incrementAndGet() > MAX_LOGGED_INVALIDATIONS) {
+            Invalidation dropped = invalidations.pollLast();
+            if (dropped != null) {
+                loggedInvalidations.decrementAndGet();
+                droppedThroughSequence.accumulateAndGet(dropped.sequence, Math::max);
+            }
+        }
+        memo.keySet().removeIf(key -> key.overlaps(from, to));
+    }
+    
+    private boolean invalidatedSince(long observedSequence, WindowKey key) {
+        if (droppedThroughSequence.get() > observedSequence) {
+            // The log no longer reaches back that far, so assume the worst
+            return true;
+        }
+        // Sequence numbers are taken before the entry is queued, so the log is only roughly ordered
+        // and has to be scanned in full; it is bounded, so that stays cheap
+        for (Invalidation invalidation : invalidations) {
+            if (invalidation.sequence > observedSequence && key.overlaps(invalidation.from, invalidation.to)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private UsageNode computeTree(LocalDateTime start, LocalDateTime end, List<GroupingLevel> hierarchy) {
+        Map<Long, Double> totals = energyEntryDAO.sumUsageByApplianceInTimeRange(start, end);
+        List<Appliance> appliances = applianceDAO.getAllAppliances();
+        
+        Appliance[] rows = appliances.toArray(new Appliance[0]);
+        double[] usage = new double[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            usage[i] = totals.getOrDefault(rows[i].getId(), 0.0);
+        }
+        
+        AggregationTask task = new AggregationTask(rows, usage, hierarchy, 0, rows.length);
+        NodeBuilder root = rows.length > PARALLEL_THRESHOLD ? ForkJoinPool.commonPool().invoke(task) : task.compute();
+        return root.build(ROOT_NAME, null, hierarchy, 0);
+    }
+    
+    private static final class AggregationTask extends RecursiveTask<NodeBuilder> {
+        
+        private final Appliance[] appliances;
+        private final double[] usage;
+        private final List<GroupingLevel> hierarchy;
+        private final int from;
+        private final int to;
+        
+        AggregationTask(Appliance[] appliances, double[] usage, List<GroupingLevel> hierarchy, int from, int to) {
+            this.appliances = appliances;
+            this.usage = usage;
+            this.hierarchy = hierarchy;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected NodeBuilder compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                NodeBuilder node = new NodeBuilder(ROOT_NAME);
+                String[] keys = new String[hierarchy.size()];
+                String[] labels = new String[hierarchy.size()];
+                for (int i = from; i < to; i++) {
+                    for (int depth = 0; depth < keys.length; depth++) {
+                        keys[depth] = hierarchy.get(depth).keyOf(appliances[i]);
+                        labels[depth] = hierarchy.get(depth).labelOf(appliances[i]);
+                    }
+                    node.add(keys, labels, usage[i]);
+                }
+                return node;
+            }
+            
+            int middle = (from + to) >>> 1;
+            AggregationTask left = new AggregationTask(appliances, usage, hierarchy, from, middle);
+            AggregationTask right = new AggregationTask(appliances, usage, hierarchy, middle, to);
+            left.fork();
+            NodeBuilder merged = right.compute();
+            merged.merge(left.join());
+            return merged;
+        }
+    }
+    
+    private static final class NodeBuilder {
+        
+        private final String label;
+        private double totalKwh;
+        private final Map<String, NodeBuilder> children = new HashMap<>();
+        
+        NodeBuilder(String label) {
+            this.label = label;
+        }
+        
+        void add(String[] keys, String[] labels, double kwh) {
+            NodeBuilder node = this;
+            node.totalKwh += kwh;
+            for (int depth = 0; depth < keys.length; depth++) {
+                String childLabel = labels[depth];
+                node = node.children.computeIfAbsent(keys[depth], k -> new NodeBuilder(childLabel));
+                node.totalKwh += kwh;
+            }
+        }
+        
+        void merge(NodeBuilder other) {
+            totalKwh += other.totalKwh;
+            for (Map.Entry<String, NodeBuilder> child : other.children.entrySet()) {
+                NodeBuilder existing = children.putIfAbsent(child.getKey(), child.getValue());
+                if (existing != null) {
+                    existing.merge(child.getValue());
+                }
+            }
+        }
+        
+        UsageNode build(String key, GroupingLevel level, List<GroupingLevel> hierarchy, int depth) {
+            UsageNode node = new UsageNode(key, label, level, totalKwh);
+            if (depth < hierarchy.size()) {
+                List<UsageNode> built = new ArrayList<>(children.size());
+                for (Map.Entry<String, NodeBuilder> child : children.entrySet()) {
+                    built.add(child.getValue().build(child.getKey(), hierarchy.get(depth), hierarchy, depth + 1));
+                }
+                built.sort(Comparator.comparingDouble(UsageNode::getTotalKwh).reversed());
+                node.setChildren(Collections.unmodifiableList(built));
+            }
+            return node;
+        }
+    }
+    
+    private static final class WindowKey {
+        
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final List<GroupingLevel> hierarchy;
+        
+        WindowKey(LocalDateTime start, LocalDateTime end, List<GroupingLevel> hierarchy) {
+            this.start = start;
+            this.end = end;
+            this.hierarchy = hierarchy;
+        }
+        
+        boolean overlaps(LocalDateTime from, LocalDateTime to) {
+            return !end.isBefore(from) && !start.isAfter(to);
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof WindowKey)) {
+                return false;
+            }
+            WindowKey other = (WindowKey) o;
+            return start.equals(other.start) && end.equals(other.end) && hierarchy.equals(other.hierarchy);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(start, end, hierarchy);
+        }
+    }
+    
+    private static final class Invalidation {
+        
+        private final long sequence;
+        private final LocalDateTime from;
+        private final LocalDateTime to;
+        
+        Invalidation(long sequence, LocalDateTime from, LocalDateTime to) {
+            this.sequence = sequence;
+            this.from = from;
+            this.to = to;
+        }
+    }
+    
+    private static final class PendingRange {
+        
+        private LocalDateTime from;
+        private LocalDateTime to;
+        
+        PendingRange(LocalDateTime from, LocalDateTime to) {
+            this.from = from;
+            this.to = to;
+        }
+        
+        void widen(LocalDateTime otherFrom, LocalDateTime otherTo) {
+            if (otherFrom.isBefore(from)) {
+                from = otherFrom;
+            }
+            if (otherTo.isAfter(to)) {
+                to = otherTo;
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -1,22 +1,81 @@
 package com.smarthome.util;
 
+import com.smarthome.model.GroupingLevel;
 import com.smarthome.service.ApplianceService;
+import com.smarthome.service.EnergyService;
+import org.flywaydb.core.api.output.MigrateResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
+import javax.ejb.Timeout;
+import javax.ejb.Timer;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
 import javax.inject.Inject;
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
 
 @Singleton
 @Startup
 public class DatabaseInitializer {
     
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseInitializer.class);
+    
+    private static final String WARM_UP_TIMER = "usage-breakdown-warm-up";
+    
+    @Resource(lookup = "java:jboss/datasources/EnergyDS")
+    private DataSource dataSource;
+    
+    @Resource
+    private TimerService timerService;
+    
     @Inject
     private ApplianceService applianceService;
     
+    @Inject
+    private EnergyService energyService;
+    
     @PostConstruct
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED) // Flyway manages its own transactions
     public void init() {
+        long start = System.nanoTime();
+        
+        // Migrations normally run as a pre-deploy step (flyway:migrate) so energyPU boots against
+        // the current schema; this catches up any deploy that skipped it
+        MigrateResult result = SchemaMigrator.migrate(dataSource);
+        if (result.migrationsExecuted > 0) {
+            logger.warn("Applied {} pending migration(s) at startup; run flyway:migrate before deploying",
+                    result.migrationsExecuted);
+        }
+        
         // Initialize default appliances if none exist
         applianceService.initializeDefaultAppliances();
+        
+        // Warm up after deployment instead of holding up boot with a day-long aggregation
+        timerService.createSingleActionTimer(0, new TimerConfig(WARM_UP_TIMER, false));
+        
+        logger.info("Database initialized in {} ms ({} ms after deployment start)",
+                (System.nanoTime() - start) / 1_000_000,
+                DeploymentTimer.millisSinceDeploymentStart());
+    }
+    
+    @Timeout
+    public void warmUp(Timer timer) {
+        // Run the dashboard's default breakdown once: this executes the grouped usage and appliance
+        // queries on a pooled connection and memoizes the tree the first requests will ask for
+        long start = System.nanoTime();
+        LocalDateTime end = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        energyService.getUsageBreakdown(end.minusDays(1), end,
+                Arrays.asList(GroupingLevel.FLOOR, GroupingLevel.ROOM), Collections.emptyList());
+        logger.info("Usage breakdown warmed up in {} ms", (System.nanoTime() - start) / 1_000_000);
     }
 }
\ No newline at end of file
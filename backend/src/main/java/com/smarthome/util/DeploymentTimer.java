@@ -0,0 +1,22 @@
+package com.smarthome.util;
+
+import javax.enterprise.event.Observes;
+import javax.enterprise.inject.spi.BeforeBeanDiscovery;
+import javax.enterprise.inject.spi.Extension;
+
+/**
+ * Marks the start of this deployment (CDI bootstrap), so startup timings stay
+ * meaningful when the WAR is redeployed into an already running server.
+ */
+public class DeploymentTimer implements Extension {
+    
+    private static volatile long deploymentStartNanos = System.nanoTime();
+    
+    void beforeBeanDiscovery(@Observes BeforeBeanDiscovery event) {
+        deploymentStartNanos = System.nanoTime();
+    }
+    
+    public static long millisSinceDeploymentStart() {
+        return (System.nanoTime() - deploymentStartNanos) / 1_000_000;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.smarthome.util;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.output.MigrateResult;
+
+import javax.sql.DataSource;
+
+public final class SchemaMigrator {
+    
+    // Keep in sync with the flyway-maven-plugin configuration in pom.xml
+    public static final String LOCATION = "classpath:db/migration";
+    public static final String BASELINE_VERSION = "0";
+    
+    private SchemaMigrator() {
+    }
+    
+    public static MigrateResult migrate(DataSource dataSource) {
+        // baselineOnMigrate adopts databases created by Hibernate schema generation before migrations existed.
+        // Baselining at 0 rather than 1 still runs V1, whose IF NOT EXISTS statements add the missing indexes
+        return Flyway.configure()
+                .dataSource(dataSource)
+                .locations(LOCATION)
+                .baselineOnMigrate(true)
+                .baselineVersion(BASELINE_VERSION)
+                .load()
+                .migrate();
+    }
+}
\ No newline at end of file
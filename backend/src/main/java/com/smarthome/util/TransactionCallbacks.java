@@ -0,0 +1,58 @@
+package com.smarthome.util;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+public final class TransactionCallbacks {
+    
+    private TransactionCallbacks() {
+    }
+    
+    /**
+     * Runs the action once the current transaction commits, or right away when there is none.
+     */
+    public static void afterCommit(TransactionSynchronizationRegistry registry, Runnable action) {
+        if (registry.getTransactionStatus() == Status.STATUS_NO_TRANSACTION) {
+            action.run();
+            return;
+        }
+        register(registry, status -> {
+            if (status == Status.STATUS_COMMITTED) {
+                action.run();
+            }
+        });
+    }
+    
+    /**
+     * Runs the action if the current transaction does not commit.
+     */
+    public static void afterRollback(TransactionSynchronizationRegistry registry, Runnable action) {
+        if (registry.getTransactionStatus() == Status.STATUS_NO_TRANSACTION) {
+            return;
+        }
+        register(registry, status -> {
+            if (status != Status.STATUS_COMMITTED) {
+                action.run();
+            }
+        });
+    }
+    
+    private static void register(TransactionSynchronizationRegistry registry, CompletionListener listener) {
+        registry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+            
+            @Override
+            public void afterCompletion(int status) {
+                listener.afterCompletion(status);
+            }
+        });
+    }
+    
+    @FunctionalInterface
+    private interface CompletionListener {
+        void afterCompletion(int status);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,3 @@
+-- Let Hibernate's pooled optimizer reserve 50 energy entry ids per sequence call
+-- (matches allocationSize on EnergyEntry so inserts can be JDBC-batched)
+ALTER SEQUENCE energy_entries_id_seq INCREMENT BY 50;
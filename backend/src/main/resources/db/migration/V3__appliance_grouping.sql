@@ -0,0 +1,4 @@
+-- Optional grouping hierarchy for per-floor / per-room / per-category breakdowns
+ALTER TABLE appliances ADD COLUMN IF NOT EXISTS floor VARCHAR(255);
+ALTER TABLE appliances ADD COLUMN IF NOT EXISTS room VARCHAR(255);
+ALTER TABLE appliances ADD COLUMN IF NOT EXISTS category VARCHAR(255);
@@ -0,0 +1,13 @@
+-- Drop duplicate readings (keep the latest row per appliance and timestamp) before enforcing uniqueness
+DELETE FROM energy_entries e
+USING energy_entries newer
+WHERE e.appliance_id = newer.appliance_id
+  AND e.timestamp = newer.timestamp
+  AND e.id < newer.id;
+
+-- Idempotent ingest: one reading per appliance and timestamp, upserted on conflict
+ALTER TABLE energy_entries
+    ADD CONSTRAINT uq_energy_entries_appliance_timestamp UNIQUE (appliance_id, timestamp);
+
+-- The unique index leads with appliance_id, so the single-column index is redundant
+DROP INDEX IF EXISTS idx_energy_entries_appliance;
@@ -0,0 +1,10 @@
+-- SERIAL ids are int4 and would overflow at bulk-ingest rates; entities map them as Long.
+-- Databases created by Hibernate before these migrations already use bigserial, so this is a no-op there.
+ALTER SEQUENCE energy_entries_id_seq AS BIGINT;
+ALTER TABLE energy_entries ALTER COLUMN id TYPE BIGINT;
+
+ALTER SEQUENCE appliances_id_seq AS BIGINT;
+ALTER TABLE appliances ALTER COLUMN id TYPE BIGINT;
+
+ALTER SEQUENCE budgets_id_seq AS BIGINT;
+ALTER TABLE budgets ALTER COLUMN id TYPE BIGINT;
@@ -0,0 +1,46 @@
+-- Databases adopted from Hibernate schema generation already had these tables when V1 ran, so its
+-- CREATE TABLE IF NOT EXISTS left their constraints out. Every step here is a no-op on a V1-built schema.
+
+-- Readings without an appliance are unreachable from the API
+DELETE FROM energy_entries WHERE appliance_id IS NULL;
+ALTER TABLE energy_entries ALTER COLUMN appliance_id SET NOT NULL;
+
+-- Replace Hibernate's generated foreign key with the cascading one from V1
+DO $$
+DECLARE
+    fk_name TEXT;
+BEGIN
+    FOR fk_name IN
+        SELECT conname FROM pg_constraint
+        WHERE conrelid = 'energy_entries'::regclass AND contype = 'f' AND confdeltype <> 'c'
+    LOOP
+        EXECUTE format('ALTER TABLE energy_entries DROP CONSTRAINT %I', fk_name);
+    END LOOP;
+
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conrelid = 'energy_entries'::regclass AND contype = 'f') THEN
+        ALTER TABLE energy_entries
+            ADD CONSTRAINT fk_energy_entries_appliance
+            FOREIGN KEY (appliance_id) REFERENCES appliances(id) ON DELETE CASCADE;
+    END IF;
+END $$;
+
+-- One budget per user (keep the latest row) before enforcing uniqueness
+DELETE FROM budgets b
+USING budgets newer
+WHERE b.user_id = newer.user_id
+  AND b.id < newer.id;
+
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1 FROM pg_constraint c
+        JOIN pg_attribute a ON a.attrelid = c.conrelid AND a.attnum = ALL (c.conkey)
+        WHERE c.conrelid = 'budgets'::regclass AND c.contype = 'u'
+          AND a.attname = 'user_id' AND array_length(c.conkey, 1) = 1
+    ) THEN
+        ALTER TABLE budgets ADD CONSTRAINT uq_budgets_user_id UNIQUE (user_id);
+    END IF;
+END $$;
+
+-- Databases baselined at version 1 never ran V1 at all
+CREATE INDEX IF NOT EXISTS idx_energy_entries_timestamp ON energy_entries(timestamp);
\ No newline at end of file
@@ -0,0 +1,179 @@
+package com.smarthome.benchmark;
+
+import com.smarthome.dao.ApplianceDAO;
+import com.smarthome.dao.EnergyEntryDAO;
+import com.smarthome.model.Appliance;
+import com.smarthome.model.EnergyEntry;
+import com.smarthome.util.SchemaMigrator;
+import org.postgresql.ds.PGSimpleDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Insert throughput of energy entries against a throwaway PostgreSQL (requires Docker).
+ *
+ * Compares the pre-batching mapping (IDENTITY ids, one INSERT per row), the pooled
+ * sequence with Hibernate JDBC batching, and the EnergyEntryDAO.upsertAll ingest path.
+ * Production ingest only uses the last one; the batched persist scenario is kept as a
+ * reference for ORM-managed writes, which energy entries no longer go through.
+ *
+ * Run with:
+ *   mvn test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.smarthome.benchmark.InsertThroughputBenchmark [-Dexec.args="rows"]
+ */
+public class InsertThroughputBenchmark {
+    
+    private static final int DEFAULT_ROWS = 50_000;
+    private static final int ROWS_PER_TRANSACTION = 1_000;
+    private static final int PERSIST_FLUSH_INTERVAL = 50; // matches hibernate.jdbc.batch_size
+    
+    private final PostgreSQLContainer<?> postgres;
+    private LocalDateTime nextTimestamp = LocalDateTime.of(2025, 1, 1, 0, 0);
+    
+    private InsertThroughputBenchmark(PostgreSQLContainer<?> postgres) {
+        this.postgres = postgres;
+    }
+    
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+        
+        try (PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")) {
+            postgres.start();
+            
+            PGSimpleDataSource dataSource = new PGSimpleDataSource();
+            dataSource.setUrl(postgres.getJdbcUrl());
+            dataSource.setUser(postgres.getUsername());
+            dataSource.setPassword(postgres.getPassword());
+            SchemaMigrator.migrate(dataSource);
+            
+            InsertThroughputBenchmark benchmark = new InsertThroughputBenchmark(postgres);
+            
+            // Each scenario gets a warm-up round so JIT and connection setup are not measured
+            benchmark.report("IDENTITY, row-by-row persist", rows,
+                    () -> benchmark.persistRows("energyIdentityPU", false, rows));
+            benchmark.report("pooled + JDBC batching (reference)", rows,
+                    () -> benchmark.persistRows("energyTestPU", true, rows));
+            benchmark.report("EnergyEntryDAO.upsertAll", rows,
+                    () -> benchmark.upsertRows(rows));
+        }
+    }
+    
+    private void report(String scenario, int rows, Scenario run) throws Exception {
+        run.execute();
+        long elapsedNanos = run.execute();
+        System.out.printf("%-35s %,10d rows in %,8d ms  %,12.0f rows/s%n",
+                scenario, rows, elapsedNanos / 1_000_000, rows / (elapsedNanos / 1e9));
+    }
+    
+    private long persistRows(String persistenceUnit, boolean rewriteBatchedInserts, int rows) {
+        EntityManagerFactory entityManagerFactory = createEntityManagerFactory(persistenceUnit, rewriteBatchedInserts);
+        try {
+            EntityManager entityManager = entityManagerFactory.createEntityManager();
+            Appliance appliance = createAppliance(entityManager);
+            
+            long start = System.nanoTime();
+            for (int written = 0; written < rows; written += ROWS_PER_TRANSACTION) {
+                entityManager.getTransaction().begin();
+                Appliance reference = entityManager.getReference(Appliance.class, appliance.getId());
+                for (int i = 0; i < Math.min(ROWS_PER_TRANSACTION, rows - written); i++) {
+                    EnergyEntry entry = nextEntry();
+                    entry.setAppliance(reference);
+                    entityManager.persist(entry);
+                    if ((i + 1) % PERSIST_FLUSH_INTERVAL == 0) {
+                        entityManager.flush();
+                        entityManager.clear();
+                        reference = entityManager.getReference(Appliance.class, appliance.getId());
+                    }
+                }
+                entityManager.getTransaction().commit();
+                entityManager.clear();
+            }
+            long elapsed = System.nanoTime() - start;
+            
+            entityManager.close();
+            return elapsed;
+        } finally {
+            entityManagerFactory.close();
+        }
+    }
+    
+    private long upsertRows(int rows) throws ReflectiveOperationException {
+        EntityManagerFactory entityManagerFactory = createEntityManagerFactory("energyTestPU", true);
+        try {
+            EntityManager entityManager = entityManagerFactory.createEntityManager();
+            EnergyEntryDAO energyEntryDAO = new EnergyEntryDAO();
+            inject(energyEntryDAO, entityManager);
+            Appliance appliance = createAppliance(entityManager);
+            
+            long start = System.nanoTime();
+            for (int written = 0; written < rows; written += ROWS_PER_TRANSACTION) {
+                List<EnergyEntry> entries = new ArrayList<>(ROWS_PER_TRANSACTION);
+                for (int i = 0; i < Math.min(ROWS_PER_TRANSACTION, rows - written); i++) {
+                    EnergyEntry entry = nextEntry();
+                    entry.setAppliance(appliance);
+                    entries.add(entry);
+                }
+                entityManager.getTransaction().begin();
+                energyEntryDAO.upsertAll(entries);
+                entityManager.getTransaction().commit();
+            }
+            long elapsed = System.nanoTime() - start;
+            
+            entityManager.close();
+            return elapsed;
+        } finally {
+            entityManagerFactory.close();
+        }
+    }
+    
+    private Appliance createAppliance(EntityManager entityManager) {
+        ApplianceDAO applianceDAO = new ApplianceDAO();
+        try {
+            inject(applianceDAO, entityManager);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+        
+        Appliance appliance = new Appliance("Benchmark Heater", "flame", 1.0);
+        entityManager.getTransaction().begin();
+        applianceDAO.create(appliance);
+        entityManager.getTransaction().commit();
+        return appliance;
+    }
+    
+    private EnergyEntry nextEntry() {
+        // Timestamps never repeat, so every row is a fresh insert for the unique (appliance_id, timestamp) key
+        nextTimestamp = nextTimestamp.plusSeconds(1);
+        return new EnergyEntry(nextTimestamp, 0.25);
+    }
+    
+    private EntityManagerFactory createEntityManagerFactory(String persistenceUnit, boolean rewriteBatchedInserts) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url",
+                postgres.getJdbcUrl() + (rewriteBatchedInserts ? "&reWriteBatchedInserts=true" : ""));
+        properties.put("javax.persistence.jdbc.user", postgres.getUsername());
+        properties.put("javax.persistence.jdbc.password", postgres.getPassword());
+        return Persistence.createEntityManagerFactory(persistenceUnit, properties);
+    }
+    
+    private static void inject(Object dao, EntityManager entityManager) throws ReflectiveOperationException {
+        // DAOs receive their EntityManager through @PersistenceContext in the container
+        Field field = dao.getClass().getDeclaredField("entityManager");
+        field.setAccessible(true);
+        field.set(dao, entityManager);
+    }
+    
+    @FunctionalInterface
+    private interface Scenario {
+        long execute() throws Exception;
+    }
+}
\ No newline at end of file
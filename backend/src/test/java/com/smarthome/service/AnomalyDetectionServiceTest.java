@@ -0,0 +1,112 @@
+package com.smarthome.service;
+
+import com.smarthome.model.EnergyAnomaly;
+import com.smarthome.model.EnergyEntry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnomalyDetectionServiceTest {
+    
+    private static final Long APPLIANCE_ID = 3L;
+    private static final int HOUR = 10;
+    
+    private AnomalyDetectionService.ApplianceBaseline baseline;
+    private LocalDateTime day;
+    private Random random;
+    
+    @BeforeEach
+    void createBaseline() {
+        baseline = new AnomalyDetectionService.ApplianceBaseline();
+        day = LocalDateTime.of(2025, 1, 1, HOUR, 0);
+        random = new Random(7);
+    }
+    
+    @Test
+    void doesNotScoreBeforeWarmUp() {
+        for (int i = 0; i < AnomalyDetectionService.MIN_SAMPLES; i++) {
+            assertNull(observe(i == AnomalyDetectionService.MIN_SAMPLES - 1 ? 50.0 : 1.0));
+        }
+    }
+    
+    @Test
+    void flagsOutlierAgainstSteadyBaseline() {
+        train(1.0, 30);
+        
+        EnergyAnomaly anomaly = observe(5.0);
+        
+        assertNotNull(anomaly);
+        assertEquals(APPLIANCE_ID, anomaly.getApplianceId());
+        assertEquals(1.0, anomaly.getExpectedKwh(), 0.05);
+        assertTrue(anomaly.getZScore() >= AnomalyDetectionService.Z_SCORE_THRESHOLD);
+        assertNull(observe(1.0));
+    }
+    
+    @Test
+    void keepsFlaggedReadingsOutOfTheBaseline() {
+        train(1.0, 30);
+        
+        for (int i = 0; i < AnomalyDetectionService.REBASELINE_AFTER - 1; i++) {
+            assertNotNull(observe(5.0));
+            assertNull(observe(1.0));
+        }
+        
+        EnergyAnomaly anomaly = observe(5.0);
+        assertNotNull(anomaly);
+        assertEquals(1.0, anomaly.getExpectedKwh(), 0.05);
+    }
+    
+    @Test
+    void followsGradualDriftAndStaysSensitive() {
+        train(1.0, 500);
+        for (int i = 1; i <= 200; i++) {
+            assertNull(observe(1.0 + i / 200.0 + noise()), "flagged drift at reading " + i);
+        }
+        train(2.0, 100);
+        
+        // A non-decaying baseline would still sit near the old level with a variance inflated by the ramp
+        EnergyAnomaly anomaly = observe(3.0);
+        assertNotNull(anomaly);
+        assertEquals(2.0, anomaly.getExpectedKwh(), 0.1);
+    }
+    
+    @Test
+    void rebaselinesAfterPersistentLevelChange() {
+        train(1.0, 30);
+        
+        for (int i = 0; i < AnomalyDetectionService.REBASELINE_AFTER; i++) {
+            assertNotNull(observe(3.0));
+        }
+        
+        // The new level is now normal, and the detector scores against it once warmed up again
+        for (int i = 0; i < 30; i++) {
+            assertNull(observe(3.0 + noise()));
+        }
+        EnergyAnomaly anomaly = observe(9.0);
+        assertNotNull(anomaly);
+        assertEquals(3.0, anomaly.getExpectedKwh(), 0.1);
+    }
+    
+    private void train(double level, int readings) {
+        for (int i = 0; i < readings; i++) {
+            assertNull(observe(level + noise()));
+        }
+    }
+    
+    private double noise() {
+        return (random.nextDouble() - 0.5) * 0.05;
+    }
+    
+    private EnergyAnomaly observe(double energyKwh) {
+        // Same hour on consecutive days, so every reading lands in one hour-of-day baseline
+        day = day.plusDays(1);
+        return baseline.observe(APPLIANCE_ID, new EnergyEntry(day, energyKwh));
+    }
+}
\ No newline at end of file
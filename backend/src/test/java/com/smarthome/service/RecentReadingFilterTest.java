@@ -0,0 +1,200 @@
+package com.smarthome.service;
+
+import com.smarthome.model.EnergyEntry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecentReadingFilterTest {
+    
+    private static final Long APPLIANCE_ID = 7L;
+    
+    private StubTransactionRegistry transactionRegistry;
+    private RecentReadingFilter filter;
+    
+    @BeforeEach
+    void createFilter() throws ReflectiveOperationException {
+        transactionRegistry = new StubTransactionRegistry();
+        filter = new RecentReadingFilter();
+        Field field = RecentReadingFilter.class.getDeclaredField("transactionRegistry");
+        field.setAccessible(true);
+        field.set(filter, transactionRegistry);
+    }
+    
+    @Test
+    void rejectsRetryOfCommittedReading() {
+        EnergyEntry reading = reading(LocalDateTime.now(), 0.25);
+        
+        transactionRegistry.begin();
+        assertEquals(1, filter.acceptNew(APPLIANCE_ID, Collections.singletonList(reading)).size());
+        transactionRegistry.complete(Status.STATUS_COMMITTED);
+        
+        assertTrue(filter.acceptNew(APPLIANCE_ID, Collections.singletonList(copyOf(reading))).isEmpty());
+    }
+    
+    @Test
+    void acceptsRetryWhileFirstRequestIsInFlight() {
+        EnergyEntry reading = reading(LocalDateTime.now(), 0.25);
+        
+        transactionRegistry.begin();
+        filter.acceptNew(APPLIANCE_ID, Collections.singletonList(reading));
+        
+        // The gateway timed out and retried before the first transaction finished
+        assertEquals(1, filter.acceptNew(APPLIANCE_ID, Collections.singletonList(copyOf(reading))).size());
+    }
+    
+    @Test
+    void acceptsRetryAfterRollback() {
+        EnergyEntry reading = reading(LocalDateTime.now(), 0.25);
+        
+        transactionRegistry.begin();
+        filter.acceptNew(APPLIANCE_ID, Collections.singletonList(reading));
+        transactionRegistry.complete(Status.STATUS_ROLLEDBACK);
+        
+        assertEquals(1, filter.acceptNew(APPLIANCE_ID, Collections.singletonList(copyOf(reading))).size());
+    }
+    
+    @Test
+    void acceptsCorrectedValue() {
+        LocalDateTime timestamp = LocalDateTime.now();
+        filter.acceptNew(APPLIANCE_ID, Collections.singletonList(reading(timestamp, 0.25)));
+        
+        assertEquals(1, filter.acceptNew(APPLIANCE_ID, Collections.singletonList(reading(timestamp, 0.30))).size());
+    }
+    
+    @Test
+    void doesNotTrackReadingsOutsideTheWindow() {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        List<EnergyEntry> readings = Arrays.asList(reading(now.minusHours(1), 0.25), reading(now.plusHours(1), 0.25));
+        filter.acceptNew(APPLIANCE_ID, readings);
+        
+        List<EnergyEntry> retries = new ArrayList<>();
+        for (EnergyEntry reading : readings) {
+            retries.add(copyOf(reading));
+        }
+        assertEquals(2, filter.acceptNew(APPLIANCE_ID, retries).size());
+    }
+    
+    @Test
+    void tableMatchesHashSetReference() {
+        RecentReadingFilter.ReadingTable table = new RecentReadingFilter.ReadingTable();
+        Set<List<Long>> reference = new HashSet<>();
+        Random random = new Random(42);
+        
+        for (int i = 0; i < 50_000; i++) {
+            long applianceId = 1 + random.nextInt(40);
+            long offset = random.nextInt(60) * 1_000_000_000L;
+            long energyBits = Double.doubleToLongBits(random.nextInt(8) * 0.05);
+            List<Long> key = Arrays.asList(applianceId, offset, energyBits);
+            
+            assertEquals(reference.contains(key), table.contains(applianceId, offset, energyBits));
+            assertTrue(table.add(applianceId, offset, energyBits));
+            reference.add(key);
+        }
+        assertEquals(reference.size(), table.size());
+        assertTrue(table.capacity() > RecentReadingFilter.ReadingTable.INITIAL_CAPACITY);
+    }
+    
+    @Test
+    void tableStopsTrackingWhenFull() {
+        RecentReadingFilter.ReadingTable table = new RecentReadingFilter.ReadingTable();
+        int limit = (int) (RecentReadingFilter.ReadingTable.MAX_CAPACITY * RecentReadingFilter.ReadingTable.MAX_LOAD);
+        
+        for (long i = 1; i <= limit; i++) {
+            assertTrue(table.add(i, i, i));
+        }
+        assertFalse(table.add(limit + 1, 0, 0));
+        assertFalse(table.contains(limit + 1, 0, 0));
+        
+        // Readings it already holds are still recognised
+        assertTrue(table.contains(1, 1, 1));
+        assertTrue(table.contains(limit, limit, limit));
+        assertEquals(limit, table.size());
+        assertEquals(RecentReadingFilter.ReadingTable.MAX_CAPACITY, table.capacity());
+    }
+    
+    private static EnergyEntry reading(LocalDateTime timestamp, double energyKwh) {
+        return new EnergyEntry(timestamp, energyKwh);
+    }
+    
+    private static EnergyEntry copyOf(EnergyEntry entry) {
+        return new EnergyEntry(entry.getTimestamp(), entry.getEnergyKwh());
+    }
+    
+    /**
+     * Registry for a single transaction at a time, completed explicitly by the test.
+     */
+    private static final class StubTransactionRegistry implements TransactionSynchronizationRegistry {
+        
+        private int status = Status.STATUS_NO_TRANSACTION;
+        private final List<Synchronization> synchronizations = new ArrayList<>();
+        private final Map<Object, Object> resources = new HashMap<>();
+        
+        void begin() {
+            status = Status.STATUS_ACTIVE;
+        }
+        
+        void complete(int completionStatus) {
+            status = Status.STATUS_NO_TRANSACTION;
+            for (Synchronization synchronization : synchronizations) {
+                synchronization.afterCompletion(completionStatus);
+            }
+            synchronizations.clear();
+            resources.clear();
+        }
+        
+        @Override
+        public Object getTransactionKey() {
+            return status == Status.STATUS_NO_TRANSACTION ? null : this;
+        }
+        
+        @Override
+        public void putResource(Object key, Object value) {
+            resources.put(key, value);
+        }
+        
+        @Override
+        public Object getResource(Object key) {
+            return resources.get(key);
+        }
+        
+        @Override
+        public void registerInterposedSynchronization(Synchronization synchronization) {
+            synchronizations.add(synchronization);
+        }
+        
+        @Override
+        public int getTransactionStatus() {
+            return status;
+        }
+        
+        @Override
+        public void setRollbackOnly() {
+            status = Status.STATUS_MARKED_ROLLBACK;
+        }
+        
+        @Override
+        public boolean getRollbackOnly() {
+            return status == Status.STATUS_MARKED_ROLLBACK;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,139 @@
+package com.smarthome.util;
+
+import org.flywaydb.core.api.output.MigrateResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.postgresql.ds.PGSimpleDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Testcontainers(disabledWithoutDocker = true)
+class SchemaMigratorTest {
+    
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+    
+    private PGSimpleDataSource dataSource;
+    
+    @BeforeEach
+    void resetDatabase() throws SQLException {
+        dataSource = new PGSimpleDataSource();
+        dataSource.setUrl(postgres.getJdbcUrl());
+        dataSource.setUser(postgres.getUsername());
+        dataSource.setPassword(postgres.getPassword());
+        
+        execute("DROP SCHEMA public CASCADE", "CREATE SCHEMA public");
+    }
+    
+    @Test
+    void migratesEmptyDatabase() throws SQLException {
+        MigrateResult result = SchemaMigrator.migrate(dataSource);
+        
+        assertEquals("6", result.targetSchemaVersion);
+        assertLatestSchema();
+    }
+    
+    @Test
+    void upgradesDatabaseCreatedByHibernateSchemaGeneration() throws SQLException {
+        // The schema a pre-migration deploy left behind: bigserial ids, sequence incrementing by 1
+        execute("CREATE TABLE appliances (id BIGSERIAL NOT NULL, current_power_kw FLOAT8 NOT NULL, "
+                        + "icon VARCHAR(255) NOT NULL, name VARCHAR(255) NOT NULL, PRIMARY KEY (id))",
+                "CREATE TABLE budgets (id BIGSERIAL NOT NULL, daily_budget_kwh FLOAT8 NOT NULL, "
+                        + "user_id VARCHAR(255) NOT NULL, PRIMARY KEY (id))",
+                "CREATE TABLE energy_entries (id BIGSERIAL NOT NULL, energy_kwh FLOAT8 NOT NULL, "
+                        + "timestamp TIMESTAMP NOT NULL, appliance_id INT8, PRIMARY KEY (id), "
+                        + "FOREIGN KEY (appliance_id) REFERENCES appliances)",
+                "INSERT INTO appliances (name, icon, current_power_kw) VALUES ('Heater', 'flame', 1.0)",
+                "INSERT INTO energy_entries (timestamp, energy_kwh, appliance_id) VALUES "
+                        + "('2025-01-01 10:00', 0.25, 1), ('2025-01-01 10:00', 0.25, 1), "
+                        + "('2025-01-01 10:00', 0.30, 1), ('2025-01-01 10:15', 0.25, 1), "
+                        + "('2025-01-01 10:30', 0.25, NULL)",
+                "INSERT INTO budgets (daily_budget_kwh, user_id) VALUES (10.0, 'default'), (12.0, 'default')");
+        
+        MigrateResult result = SchemaMigrator.migrate(dataSource);
+        
+        assertEquals("6", result.targetSchemaVersion);
+        assertLatestSchema();
+        assertEquals(2L, queryLong("SELECT COUNT(*) FROM energy_entries"));
+        assertEquals(0.30, queryDouble(
+                "SELECT energy_kwh FROM energy_entries WHERE timestamp = '2025-01-01 10:00'"), 1e-9);
+        assertEquals(12.0, queryDouble("SELECT daily_budget_kwh FROM budgets WHERE user_id = 'default'"), 1e-9);
+    }
+    
+    private void assertLatestSchema() throws SQLException {
+        assertEquals(50L, queryLong(
+                "SELECT increment_by FROM pg_sequences WHERE sequencename = 'energy_entries_id_seq'"));
+        assertEquals("bigint", queryString(
+                "SELECT data_type FROM pg_sequences WHERE sequencename = 'energy_entries_id_seq'"));
+        for (String table : new String[] {"appliances", "budgets", "energy_entries"}) {
+            assertEquals("bigint", queryString("SELECT data_type FROM information_schema.columns "
+                    + "WHERE table_name = '" + table + "' AND column_name = 'id'"));
+        }
+        
+        assertEquals(1L, queryLong("SELECT COUNT(*) FROM pg_indexes "
+                + "WHERE tablename = 'energy_entries' AND indexname = 'idx_energy_entries_timestamp'"));
+        assertEquals("NO", queryString("SELECT is_nullable FROM information_schema.columns "
+                + "WHERE table_name = 'energy_entries' AND column_name = 'appliance_id'"));
+        
+        execute("INSERT INTO appliances (name, icon, current_power_kw) VALUES ('Fridge', 'refrigerator', 0.2)");
+        long applianceId = queryLong("SELECT MAX(id) FROM appliances");
+        String reading = "INSERT INTO energy_entries (timestamp, energy_kwh, appliance_id) "
+                + "VALUES ('2025-02-01 08:00', 0.1, " + applianceId + ")";
+        execute(reading);
+        assertThrows(SQLException.class, () -> execute(reading));
+        
+        execute("DELETE FROM appliances WHERE id = " + applianceId);
+        assertEquals(0L, queryLong("SELECT COUNT(*) FROM energy_entries WHERE appliance_id = " + applianceId));
+        
+        String budget = "INSERT INTO budgets (daily_budget_kwh, user_id) VALUES (5.0, 'schema-test')";
+        execute(budget);
+        assertThrows(SQLException.class, () -> execute(budget));
+        
+        // energyPU must boot against the migrated schema even with Hibernate's strict default
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", postgres.getJdbcUrl());
+        properties.put("javax.persistence.jdbc.user", postgres.getUsername());
+        properties.put("javax.persistence.jdbc.password", postgres.getPassword());
+        properties.put("hibernate.id.sequence.increment_size_mismatch_strategy", "EXCEPTION");
+        EntityManagerFactory entityManagerFactory = Persistence.createEntityManagerFactory("energyTestPU", properties);
+        entityManagerFactory.close();
+    }
+    
+    private void execute(String... statements) throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+        }
+    }
+    
+    private long queryLong(String sql) throws SQLException {
+        return Long.parseLong(queryString(sql));
+    }
+    
+    private double queryDouble(String sql) throws SQLException {
+        return Double.parseDouble(queryString(sql));
+    }
+    
+    private String queryString(String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getString(1);
+        }
+    }
+}
\ No newline at end of file